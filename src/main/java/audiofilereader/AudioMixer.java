@@ -0,0 +1,311 @@
+package audiofilereader;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Mixes and concatenates MixSources into 16bit audio.
+ * The mix is rendered lazily in blocks into buffers that are reused, and each source is read only as far
+ * as the current block needs. With StreamAudioSources the memory use stays the same no matter how long
+ * the mix is. The mix is rendered once from start to end, since streams can't go back.
+ * 
+ * Samples are summed as floats and clipped to the 16bit range. Dither (TPDF, 1 LSB) can be turned on
+ * with setDither(), it's only added to values that aren't whole numbers, so a source with gain 1 that
+ * doesn't overlap anything comes out sample for sample the same.
+ */
+public class AudioMixer {
+	public interface BlockConsumer {
+		/**
+		 * @param samples Interleaved samples. The array is reused for the next block, copy it if you need to keep it.
+		 * @param frames Number of valid frames in samples.
+		 */
+		void accept(short[] samples, int frames);
+	}
+	
+	private final int sampleRate;
+	private final int channels;
+	private final int blockFrames;
+	
+	private final List<MixSource> sources = new ArrayList<>();
+	
+	private final float[] mixBuffer;
+	private final short[] outputBuffer;
+	private byte[] byteBuffer;
+	
+	private long position = 0;
+	private boolean dither = false;
+	private long clippedSamples = 0;
+	private int randomState = 0x2545F491;
+	
+	public AudioMixer(int sampleRate, int channels) {
+		this(sampleRate, channels, 4096);
+	}
+	
+	public AudioMixer(int sampleRate, int channels, int blockFrames) {
+		if (channels != 1 && channels != 2) {
+			throw new IllegalArgumentException("mixer supports 1 or 2 channels, was " + channels);
+		}
+		if (blockFrames < 1) {
+			throw new IllegalArgumentException("block size must be at least 1 frame, was " + blockFrames);
+		}
+		this.sampleRate = sampleRate;
+		this.channels = channels;
+		this.blockFrames = blockFrames;
+		
+		mixBuffer = new float[blockFrames * channels];
+		outputBuffer = new short[blockFrames * channels];
+	}
+	
+	/**
+	 * Sources can be added also while rendering. If the mix has already passed the offset of the source,
+	 * the part before the current position is skipped, so the source still lines up with its offset.
+	 * @param source
+	 * @return 
+	 */
+	public AudioMixer addSource(MixSource source) {
+		sources.add(source);
+		return this;
+	}
+	
+	/**
+	 * Adds the source to start right after the current end of the mix.
+	 * All sources already added need to have a known length.
+	 * @param source
+	 * @return 
+	 */
+	public AudioMixer append(MixSource source) {
+		long length = getLengthFrames();
+		if (length < 0) {
+			throw new IllegalStateException("can't append after a source with unknown length");
+		}
+		source.setOffsetFrames(length);
+		return addSource(source);
+	}
+	
+	public List<MixSource> getSources() {
+		return sources;
+	}
+	
+	public int getSampleRate() {
+		return sampleRate;
+	}
+	
+	public int getChannels() {
+		return channels;
+	}
+	
+	public int getBlockFrames() {
+		return blockFrames;
+	}
+	
+	/**
+	 * Adds dither when the mixed value is between two 16bit values (gain, overlapping sources or resampling).
+	 * Off by default.
+	 * @param dither 
+	 */
+	public void setDither(boolean dither) {
+		this.dither = dither;
+	}
+	
+	/**
+	 * @return Number of samples that were over the 16bit range and got clipped.
+	 */
+	public long getClippedSamples() {
+		return clippedSamples;
+	}
+	
+	/**
+	 * @return Length of the mix, -1 if some source doesn't know its length yet.
+	 */
+	public long getLengthFrames() {
+		long length = 0;
+		for (MixSource source : sources) {
+			long sourceLength = source.getLengthFrames(sampleRate);
+			if (sourceLength < 0) {
+				return -1;
+			}
+			length = Math.max(length, source.getOffsetFrames() + sourceLength);
+		}
+		return length;
+	}
+	
+	public long getPosition() {
+		return position;
+	}
+	
+	public boolean isFinished() {
+		for (MixSource source : sources) {
+			if (!source.isFinished()) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Renders the next block to the output buffer.
+	 * @return Number of frames rendered, 0 when the mix has ended.
+	 * @throws IOException If reading a source fails.
+	 */
+	public int renderBlock() throws IOException {
+		int frames = blockFrames;
+		long lengthFrames = getLengthFrames();
+		if (lengthFrames >= 0) {
+			frames = (int) Math.min(frames, lengthFrames - position);
+		}
+		if (frames <= 0 || isFinished()) {
+			return 0;
+		}
+		
+		Arrays.fill(mixBuffer, 0, frames * channels, 0);
+		int covered = 0;
+		for (MixSource source : sources) {
+			covered = Math.max(covered, source.mixInto(mixBuffer, position, frames, sampleRate, channels));
+		}
+		if (isFinished()) {
+			frames = covered; //sources with unknown length ended inside this block
+		}
+		
+		int length = frames * channels;
+		
+		for (int i = 0; i < length; i++) {
+			float val = mixBuffer[i];
+			if (dither && val != (int) val) {
+				val += nextRandom() - nextRandom();
+			}
+			int s = Math.round(val);
+			if (s > Short.MAX_VALUE) {
+				s = Short.MAX_VALUE;
+				clippedSamples++;
+			} else if (s < Short.MIN_VALUE) {
+				s = Short.MIN_VALUE;
+				clippedSamples++;
+			}
+			outputBuffer[i] = (short) s;
+		}
+		
+		position += frames;
+		return frames;
+	}
+	
+	/**
+	 * @return Interleaved samples of the last rendered block. Reused between blocks.
+	 */
+	public short[] getOutputBuffer() {
+		return outputBuffer;
+	}
+	
+	/**
+	 * Renders from the current position to the end, giving each block to the consumer.
+	 * @param consumer 
+	 * @throws IOException If reading a source fails.
+	 */
+	public void render(BlockConsumer consumer) throws IOException {
+		int frames;
+		while ((frames = renderBlock()) > 0) {
+			consumer.accept(outputBuffer, frames);
+		}
+	}
+	
+	/**
+	 * Writes the mix from the current position to the end as 16bit little endian interleaved bytes,
+	 * the same format as MusicData.getDataBytes().
+	 * @param out
+	 * @return Number of bytes written.
+	 * @throws IOException 
+	 */
+	public long writeTo(OutputStream out) throws IOException {
+		return writeTo(out, Long.MAX_VALUE);
+	}
+	
+	//stops with an IOException before writing more than maxBytes.
+	private long writeTo(OutputStream out, long maxBytes) throws IOException {
+		if (byteBuffer == null) {
+			byteBuffer = new byte[outputBuffer.length * 2];
+		}
+		
+		long written = 0;
+		int frames;
+		while ((frames = renderBlock()) > 0) {
+			int length = frames * channels;
+			for (int i = 0; i < length; i++) {
+				short sample = outputBuffer[i];
+				byteBuffer[2 * i] = (byte) (sample & 0xff);
+				byteBuffer[2 * i + 1] = (byte) (sample >> 8 & 0xff);
+			}
+			if (written + length * 2 > maxBytes) {
+				throw new IOException("mix is too long, over " + maxBytes + " bytes");
+			}
+			out.write(byteBuffer, 0, length * 2);
+			written += length * 2;
+		}
+		return written;
+	}
+	
+	/**
+	 * Renders the mix from the current position to the end to a 16bit PCM wav file.
+	 * The mixer doesn't go back, so a mix that was already rendered can't be written again.
+	 * Lengths in the header are filled in after rendering, so the mix length doesn't have to be known.
+	 * If the mix doesn't fit in a wav file (4 GB), the file is deleted and an IOException is thrown,
+	 * before rendering if the length is known, otherwise when the limit is reached.
+	 * @param file
+	 * @throws IOException 
+	 */
+	public void writeWav(File file) throws IOException {
+		long maxDataLength = 0xFFFFFFFFL - 36;
+		long lengthFrames = getLengthFrames();
+		if (lengthFrames >= 0 && (lengthFrames - position) * channels * 2 > maxDataLength) {
+			throw new IOException("mix is too long for a wav file: " + (lengthFrames - position) * channels * 2 + " bytes");
+		}
+		
+		long dataLength;
+		try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+			out.write(createWavHeader(0));
+			dataLength = writeTo(out, maxDataLength);
+		} catch (IOException e) {
+			file.delete(); //a partial file would look like a valid empty wav.
+			throw e;
+		}
+		
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			raf.write(createWavHeader(dataLength));
+		}
+	}
+	
+	private byte[] createWavHeader(long dataLength) {
+		int bytesPerFrame = channels * 2;
+		ByteBuffer header = ByteBuffer.allocate(44).order(ByteOrder.LITTLE_ENDIAN);
+		header.put("RIFF".getBytes(StandardCharsets.US_ASCII));
+		header.putInt((int) (36 + dataLength));
+		header.put("WAVE".getBytes(StandardCharsets.US_ASCII));
+		header.put("fmt ".getBytes(StandardCharsets.US_ASCII));
+		header.putInt(16);
+		header.putShort((short) 1); //PCM
+		header.putShort((short) channels);
+		header.putInt(sampleRate);
+		header.putInt(sampleRate * bytesPerFrame);
+		header.putShort((short) bytesPerFrame);
+		header.putShort((short) 16);
+		header.put("data".getBytes(StandardCharsets.US_ASCII));
+		header.putInt((int) dataLength);
+		return header.array();
+	}
+	
+	//xorshift, returns a value between 0 and 1. Two of these subtracted gives triangular dither noise.
+	private float nextRandom() {
+		randomState ^= randomState << 13;
+		randomState ^= randomState >>> 17;
+		randomState ^= randomState << 5;
+		return (randomState >>> 8) / (float) (1 << 24);
+	}
+}
@@ -0,0 +1,27 @@
+package audiofilereader;
+
+import java.io.IOException;
+
+/**
+ * Audio that is read from start to end in pieces, so it doesn't have to be in memory all at once.
+ * Used as the input of MixSource. MusicDataView and StreamAudioSource are the implementations.
+ */
+public interface AudioSource {
+	public int getSampleRate();
+	
+	/**
+	 * @return Number of frames, -1 if it's not known before the end is reached.
+	 */
+	public long getTotalFrames();
+	
+	/**
+	 * Reads the next frames, separated to channels. Mono sources give the same samples to both channels.
+	 * @param left
+	 * @param right
+	 * @param offset
+	 * @param frames
+	 * @return Number of frames read, -1 at the end.
+	 * @throws IOException 
+	 */
+	public int read(short[] left, short[] right, int offset, int frames) throws IOException;
+}
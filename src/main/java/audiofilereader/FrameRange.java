@@ -0,0 +1,34 @@
+package audiofilereader;
+
+/**
+ * Range of frames, start inclusive and end exclusive.
+ */
+public class FrameRange {
+	private final long startFrame;
+	private final long endFrame;
+	
+	public FrameRange(long startFrame, long endFrame) {
+		if (endFrame < startFrame) {
+			throw new IllegalArgumentException("end frame " + endFrame + " is before start frame " + startFrame);
+		}
+		this.startFrame = startFrame;
+		this.endFrame = endFrame;
+	}
+	
+	public long getStartFrame() {
+		return startFrame;
+	}
+	
+	public long getEndFrame() {
+		return endFrame;
+	}
+	
+	public long getLength() {
+		return endFrame - startFrame;
+	}
+	
+	@Override
+	public String toString() {
+		return "[" + startFrame + ", " + endFrame + ")";
+	}
+}
@@ -0,0 +1,182 @@
+package audiofilereader;
+
+import java.io.IOException;
+
+/**
+ * One input of an AudioMixer. Reads its AudioSource in blocks while the mix is rendered, so a source
+ * can be a stream that is never fully in memory, or a MusicDataView (for example from trimSilence()
+ * or splitOnSilence()) that reads the MusicData without copying.
+ * If the sample rate differs from the mixer, the source goes through a Resampler.
+ */
+public class MixSource {
+	public enum ChannelMapping {
+		NORMAL, //mono sources are duplicated to both channels, like MusicData.getSamplesRight() does.
+		SWAP,
+		LEFT_TO_BOTH,
+		RIGHT_TO_BOTH,
+		DOWNMIX
+	}
+	
+	private final AudioSource source;
+	private double gain = 1;
+	private long offsetFrames = 0; //in mixer frames
+	private ChannelMapping channelMapping = ChannelMapping.NORMAL;
+	
+	private Resampler resampler; //created when the mix reaches the source
+	private float[] left = new float[0];
+	private float[] right = new float[0];
+	
+	public MixSource(AudioSource source) {
+		this.source = source;
+	}
+	
+	public MixSource(MusicData musicData) {
+		this(musicData.view(0, musicData.getFrameCount()));
+	}
+	
+	/**
+	 * Uses a copy of the view, so the same view can be given to many sources.
+	 * @param view 
+	 */
+	public MixSource(MusicDataView view) {
+		this((AudioSource) view.subView(0, view.getFrameCount()));
+	}
+	
+	public AudioSource getSource() {
+		return source;
+	}
+	
+	public double getGain() {
+		return gain;
+	}
+	
+	public MixSource setGain(double gain) {
+		this.gain = gain;
+		return this;
+	}
+	
+	public MixSource setGainDecibels(double dB) {
+		return setGain(Math.pow(10, dB / 20));
+	}
+	
+	public long getOffsetFrames() {
+		return offsetFrames;
+	}
+	
+	/**
+	 * @param offsetFrames Frame in the mix (in mixer sample rate) where this source starts.
+	 * @return 
+	 */
+	public MixSource setOffsetFrames(long offsetFrames) {
+		if (offsetFrames < 0) {
+			throw new IllegalArgumentException("offset can't be negative, was " + offsetFrames);
+		}
+		this.offsetFrames = offsetFrames;
+		return this;
+	}
+	
+	public ChannelMapping getChannelMapping() {
+		return channelMapping;
+	}
+	
+	public MixSource setChannelMapping(ChannelMapping channelMapping) {
+		this.channelMapping = channelMapping;
+		return this;
+	}
+	
+	/**
+	 * @param sampleRate Sample rate of the mix.
+	 * @return Length of this source in the mix, not including the offset. -1 if not known yet.
+	 */
+	public long getLengthFrames(int sampleRate) {
+		if (resampler != null) {
+			return resampler.getLengthFrames();
+		}
+		long frames = source.getTotalFrames();
+		if (frames < 0) {
+			return -1;
+		}
+		return (frames * sampleRate + source.getSampleRate() - 1) / source.getSampleRate();
+	}
+	
+	/**
+	 * @return True when the whole source has been mixed.
+	 */
+	public boolean isFinished() {
+		return resampler != null && resampler.isFinished();
+	}
+	
+	/**
+	 * Adds the next part of this source to the interleaved mix buffer.
+	 * Has to be called for consecutive blocks, since the source is read in order.
+	 * @param mix
+	 * @param startFrame Mix frame of mix[0].
+	 * @param frames Number of frames in the block.
+	 * @param sampleRate Sample rate of the mix.
+	 * @param channels Channels of the mix, 1 or 2.
+	 * @return Number of frames from the start of the block to the last frame this source wrote, 0 if none.
+	 * @throws IOException 
+	 */
+	int mixInto(float[] mix, long startFrame, int frames, int sampleRate, int channels) throws IOException {
+		if (startFrame + frames <= offsetFrames) {
+			return 0;
+		}
+		if (resampler == null) {
+			resampler = new Resampler(source, sampleRate);
+		}
+		
+		int skip = (int) Math.max(0, offsetFrames - startFrame);
+		if (left.length < frames - skip) {
+			left = new float[frames - skip];
+			right = new float[frames - skip];
+		}
+		
+		//if the source was added after the mix passed its offset, the part that was already passed is read and thrown away.
+		long behind = startFrame + skip - offsetFrames - resampler.getPosition();
+		while (behind > 0) {
+			int read = resampler.read(left, right, 0, (int) Math.min(behind, left.length));
+			if (read <= 0) {
+				return 0;
+			}
+			behind -= read;
+		}
+		
+		int read = resampler.read(left, right, 0, frames - skip);
+		
+		for (int i = 0; i < read; i++) {
+			float outLeft;
+			float outRight;
+			switch (channelMapping) {
+				case SWAP:
+					outLeft = right[i];
+					outRight = left[i];
+					break;
+				case LEFT_TO_BOTH:
+					outLeft = left[i];
+					outRight = left[i];
+					break;
+				case RIGHT_TO_BOTH:
+					outLeft = right[i];
+					outRight = right[i];
+					break;
+				case DOWNMIX:
+					outLeft = (left[i] + right[i]) / 2;
+					outRight = outLeft;
+					break;
+				default:
+					outLeft = left[i];
+					outRight = right[i];
+					break;
+			}
+			
+			int idx = (skip + i) * channels;
+			if (channels == 1) {
+				mix[idx] += (float) ((outLeft + outRight) / 2 * gain);
+			} else {
+				mix[idx] += (float) (outLeft * gain);
+				mix[idx + 1] += (float) (outRight * gain);
+			}
+		}
+		return read > 0 ? skip + read : 0;
+	}
+}
@@ -1,11 +1,15 @@
 package audiofilereader;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.time.Duration;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
 import javax.sound.sampled.AudioFormat;
 import javax.sound.sampled.AudioInputStream;
 import javax.sound.sampled.AudioSystem;
@@ -30,6 +34,8 @@ public class MusicData {
 	private short[] samplesLeft; //samples separated to channels.
 	private short[] samplesRight;
 	
+	private List<FrameRange> activityRanges; //non silent parts, found while decoding if a SilenceDetector was given.
+	
 	public static double convertProgress;
 	
 	/**
@@ -68,13 +74,24 @@ public class MusicData {
 	 * @param file
 	 * @return 
 	 */
-	public static MusicData createMusicData(File file) { //TODO: move this and convertProgress to AudioFileReader instead.
+	public static MusicData createMusicData(File file) {
+		return createMusicData(file, null);
+	}
+	
+	/**
+	 * Same as createMusicData(file), but also runs the detector on the audio while it's being decoded.
+	 * Detector gets the format with begin(), and the results are in getActivityRanges().
+	 * @param file
+	 * @param detector Can be null.
+	 * @return 
+	 */
+	public static MusicData createMusicData(File file, SilenceDetector detector) { //TODO: move this and convertProgress to AudioFileReader instead.
 		try {
 			if (file == null) {
 				return null;
 			}
 			AudioInputStream ais = AudioSystem.getAudioInputStream(file);
-			return new MusicData(ais, file.getName());
+			return new MusicData(ais, file.getName(), detector);
 			
 		} catch (IOException | UnsupportedAudioFileException e) {
 			System.err.println("Couldn't read audio file: " + e.getMessage());
@@ -116,12 +133,19 @@ public class MusicData {
 				
 				new StreamGobblerText(process.getErrorStream(), StreamGobbler.Type.ERROR, false, text -> MusicData.updateConvertProgress(FFmpegProgress.getProgress(text, dur))).start();
 				
-				byte[] bytes = process.getInputStream().readAllBytes();
+				if (detector != null) {
+					detector.begin(sampleRate, channels);
+				}
+				byte[] bytes = readAllBytes(process.getInputStream(), detector);
 				
 				process.waitFor();
 				process.destroy();
 				
-				return createMusicDataByDataBytes(bytes, file.getName(), sampleRate, channels);
+				MusicData musicData = createMusicDataByDataBytes(bytes, file.getName(), sampleRate, channels);
+				if (detector != null) {
+					musicData.activityRanges = detector.finish();
+				}
+				return musicData;
 				
 				
 				//with the use of an extra file
@@ -139,6 +163,28 @@ public class MusicData {
 		return null;
 	}
 	
+	/**
+	 * Reads the stream to the end in blocks, feeding each block to the detector as it comes.
+	 * @param in
+	 * @param detector Can be null.
+	 * @return
+	 * @throws IOException 
+	 */
+	private static byte[] readAllBytes(InputStream in, SilenceDetector detector) throws IOException {
+		if (detector == null) {
+			return in.readAllBytes();
+		}
+		
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		int read;
+		while ((read = in.read(buffer)) != -1) {
+			detector.process(buffer, 0, read);
+			out.write(buffer, 0, read);
+		}
+		return out.toByteArray();
+	}
+	
 	public static void updateConvertProgress(double percent) {
 		if (percent < 0) {
 			return;
@@ -153,6 +199,10 @@ public class MusicData {
 	public MusicData() {}
 	
 	public MusicData(AudioInputStream ais, String filename) {
+		this(ais, filename, null);
+	}
+	
+	public MusicData(AudioInputStream ais, String filename, SilenceDetector detector) {
 		try {
 			AudioFormat format = ais.getFormat();
 			
@@ -173,8 +223,14 @@ public class MusicData {
 			avgBytesPerSecond = (sampleRate * bitsPerSample * channels) / 8;
 			dataLength = ais.getFrameLength() * bytesPerFrame;
 		
-			dataBytes = ais.readAllBytes();
+			if (detector != null) {
+				detector.begin(sampleRate, channels);
+			}
+			dataBytes = readAllBytes(ais, detector);
 			setSamples(convertByteDataToSamples(), false);
+			if (detector != null) {
+				activityRanges = detector.finish();
+			}
 			
 		} catch (IOException e) {
 			e.printStackTrace();
@@ -260,6 +316,83 @@ public class MusicData {
 		return s;
 	}
 	
+	/**
+	 * @return Activity ranges found while decoding or by detectActivity(), null if neither was done.
+	 */
+	public List<FrameRange> getActivityRanges() {
+		return activityRanges;
+	}
+	
+	/**
+	 * Runs the detector over the already loaded audio in one pass, and stores the results.
+	 * @param detector
+	 * @return Activity ranges.
+	 */
+	public List<FrameRange> detectActivity(SilenceDetector detector) {
+		detector.begin(sampleRate, channels);
+		if (bitsPerSample == 16 && dataBytes != null) {
+			detector.process(dataBytes, 0, dataBytes.length);
+		} else {
+			short[] s = getSamples();
+			detector.process(s, 0, s.length);
+		}
+		activityRanges = detector.finish();
+		return activityRanges;
+	}
+	
+	/**
+	 * Zero-copy view of the given frames.
+	 * @param startFrame
+	 * @param frameCount
+	 * @return 
+	 */
+	public MusicDataView view(int startFrame, int frameCount) {
+		return new MusicDataView(this, startFrame, frameCount);
+	}
+	
+	/**
+	 * View from the start of the first activity range to the end of the last one.
+	 * Uses the ranges found while decoding, or runs the default SilenceDetector if there are none.
+	 * @return Empty view if the audio is all silence.
+	 */
+	public MusicDataView trimSilence() {
+		List<FrameRange> ranges = getOrDetectActivityRanges();
+		if (ranges.isEmpty()) {
+			return view(0, 0);
+		}
+		int start = (int) ranges.get(0).getStartFrame();
+		int end = (int) Math.min(ranges.get(ranges.size() - 1).getEndFrame(), getFrameCount());
+		return view(start, end - start);
+	}
+	
+	/**
+	 * One view per activity range.
+	 * Uses the ranges found while decoding, or runs the default SilenceDetector if there are none.
+	 * Needs the whole audio loaded, so it's limited by the array sizes of MusicData.
+	 * For long recordings use SilenceDetector.split() on the decoded stream instead.
+	 * @return 
+	 */
+	public List<MusicDataView> splitOnSilence() {
+		List<FrameRange> ranges = getOrDetectActivityRanges();
+		List<MusicDataView> views = new ArrayList<>(ranges.size());
+		
+		for (FrameRange range : ranges) {
+			int start = (int) range.getStartFrame();
+			int end = (int) Math.min(range.getEndFrame(), getFrameCount());
+			if (end > start) {
+				views.add(view(start, end - start));
+			}
+		}
+		return views;
+	}
+	
+	private List<FrameRange> getOrDetectActivityRanges() {
+		if (activityRanges == null) {
+			return detectActivity(new SilenceDetector());
+		}
+		return activityRanges;
+	}
+	
 	public final short[] convertByteDataToSamples() {
 		int bytesPerSample = bitsPerSample / 8;
 		short[] tempSamples = new short[(int) dataLength / bytesPerSample];
@@ -298,6 +431,7 @@ public class MusicData {
 		samples = null;
 		samplesLeft = null;
 		samplesRight = null;
+		activityRanges = null;
 	}
 	
 	/**
@@ -319,6 +453,7 @@ public class MusicData {
 			turnSamplesToByteData(); //we need dataBytes for audio playback, samples are used for other things.
 		}
 		separateSamplesToChannels();
+		activityRanges = null; //ranges of the previous audio don't apply anymore.
 	}
 	
 	private short[] duplicateChannel(short[] samples) {
@@ -0,0 +1,124 @@
+package audiofilereader;
+
+/**
+ * Range of frames inside a MusicData. Does not copy the audio, reads straight from the MusicData arrays.
+ * Frame numbers given to the methods are relative to the start of the view.
+ * As an AudioSource the view keeps its own read position, so use a separate view for each reader.
+ */
+public class MusicDataView implements AudioSource {
+	private final MusicData musicData;
+	private final int startFrame;
+	private final int frameCount;
+	
+	private int readPosition = 0;
+	
+	public MusicDataView(MusicData musicData, int startFrame, int frameCount) {
+		if (startFrame < 0 || frameCount < 0 || startFrame + frameCount > musicData.getFrameCount()) {
+			throw new IndexOutOfBoundsException("view [" + startFrame + ", " + (startFrame + frameCount) + ") is outside of 0-" + musicData.getFrameCount());
+		}
+		this.musicData = musicData;
+		this.startFrame = startFrame;
+		this.frameCount = frameCount;
+	}
+	
+	public MusicData getMusicData() {
+		return musicData;
+	}
+	
+	public int getStartFrame() {
+		return startFrame;
+	}
+	
+	public int getEndFrame() {
+		return startFrame + frameCount;
+	}
+	
+	public int getFrameCount() {
+		return frameCount;
+	}
+	
+	public int getChannels() {
+		return musicData.getChannels();
+	}
+	
+	@Override
+	public int getSampleRate() {
+		return musicData.sampleRate;
+	}
+	
+	public short getSample(boolean left, int frame) {
+		if (frame < 0 || frame >= frameCount) {
+			return 0;
+		}
+		short[] s = musicData.getSamplesByChannel(left);
+		int idx = startFrame + frame;
+		return idx < s.length ? s[idx] : 0;
+	}
+	
+	/**
+	 * Copies samples of one channel to the buffer. Frames outside of the view are written as 0.
+	 * @param left
+	 * @param frame Relative to the start of the view.
+	 * @param buffer
+	 * @param offset
+	 * @param length 
+	 */
+	public void getSamplesByChannel(boolean left, int frame, short[] buffer, int offset, int length) {
+		short[] s = musicData.getSamplesByChannel(left);
+		for (int i = 0; i < length; i++) {
+			int f = frame + i;
+			int idx = startFrame + f;
+			buffer[offset + i] = (f >= 0 && f < frameCount && idx < s.length) ? s[idx] : 0;
+		}
+	}
+	
+	/**
+	 * Offset of the view in MusicData.getDataBytes(). Together with getByteLength() this
+	 * can be written straight to a SourceDataLine.
+	 * @return 
+	 */
+	public int getByteOffset() {
+		return musicData.frameToByteNumber(startFrame);
+	}
+	
+	public int getByteLength() {
+		return musicData.frameToByteNumber(frameCount);
+	}
+	
+	/**
+	 * @param frame Relative to the start of this view.
+	 * @param frameCount
+	 * @return View with the same MusicData.
+	 */
+	public MusicDataView subView(int frame, int frameCount) {
+		if (frame < 0 || frameCount < 0 || frame + frameCount > this.frameCount) {
+			throw new IndexOutOfBoundsException("sub view [" + frame + ", " + (frame + frameCount) + ") is outside of 0-" + this.frameCount);
+		}
+		return new MusicDataView(musicData, startFrame + frame, frameCount);
+	}
+	
+	@Override
+	public long getTotalFrames() {
+		return frameCount;
+	}
+	
+	@Override
+	public int read(short[] left, short[] right, int offset, int frames) {
+		if (readPosition >= frameCount) {
+			return -1;
+		}
+		int count = Math.min(frames, frameCount - readPosition);
+		getSamplesByChannel(true, readPosition, left, offset, count);
+		getSamplesByChannel(false, readPosition, right, offset, count);
+		readPosition += count;
+		return count;
+	}
+	
+	public long getDurationMillis() {
+		return musicData.frameToMillis(frameCount);
+	}
+	
+	public long getStartMillis() {
+		return musicData.frameToMillis(startFrame);
+	}
+}
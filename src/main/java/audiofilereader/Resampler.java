@@ -0,0 +1,181 @@
+package audiofilereader;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Reads an AudioSource at another sample rate, using a windowed sinc (Blackman) filter.
+ * Cutoff is a bit under half of the lower sample rate, so downsampling doesn't alias.
+ * Input that is still needed is kept between reads, so the output can be read in blocks.
+ * If the sample rates are the same, samples are passed through unchanged.
+ */
+public class Resampler {
+	private static final int ZERO_CROSSINGS = 16; //filter length on one side, in zero crossings of the sinc
+	private static final int TABLE_STEPS = 512; //table values between two zero crossings
+	private static final double ROLLOFF = 0.95; //cutoff relative to the lower nyquist, leaves room for the transition band
+	private static final float[] KERNEL = createKernel();
+	private static final int READ_FRAMES = 1024;
+	
+	private final AudioSource source;
+	private final int sourceRate;
+	private final int outputRate;
+	private final boolean passThrough;
+	private final double cutoff; //relative to the source nyquist
+	private final double halfWidth; //filter length on one side in source frames
+	
+	private final short[] readLeft = new short[READ_FRAMES];
+	private final short[] readRight = new short[READ_FRAMES];
+	private float[] left = new float[0];
+	private float[] right = new float[0];
+	private long bufferStart = 0; //source frame of left[0] and right[0]
+	private int bufferLength = 0;
+	private long sourceEnd = -1; //number of source frames, known after the source has ended
+	
+	private long position = 0; //next output frame
+	
+	public Resampler(AudioSource source, int outputRate) {
+		this.source = source;
+		this.sourceRate = source.getSampleRate();
+		this.outputRate = outputRate;
+		passThrough = sourceRate == outputRate;
+		cutoff = Math.min(1, outputRate / (double) sourceRate) * ROLLOFF;
+		halfWidth = ZERO_CROSSINGS / cutoff;
+	}
+	
+	private static float[] createKernel() {
+		int size = ZERO_CROSSINGS * TABLE_STEPS;
+		float[] kernel = new float[size + 2]; //last values stay 0 for the interpolation
+		kernel[0] = 1;
+		for (int i = 1; i <= size; i++) {
+			double t = i / (double) TABLE_STEPS;
+			double u = t / ZERO_CROSSINGS;
+			double sinc = Math.sin(Math.PI * t) / (Math.PI * t);
+			double window = 0.42 + 0.5 * Math.cos(Math.PI * u) + 0.08 * Math.cos(2 * Math.PI * u);
+			kernel[i] = (float) (sinc * window);
+		}
+		return kernel;
+	}
+	
+	/**
+	 * @return Length in output frames, -1 if the source length is not known yet.
+	 */
+	public long getLengthFrames() {
+		long frames = source.getTotalFrames();
+		if (frames < 0) {
+			frames = sourceEnd;
+		}
+		if (frames < 0) {
+			return -1;
+		}
+		return (frames * outputRate + sourceRate - 1) / sourceRate;
+	}
+	
+	public boolean isFinished() {
+		long length = getLengthFrames();
+		return length >= 0 && position >= length;
+	}
+	
+	public long getPosition() {
+		return position;
+	}
+	
+	/**
+	 * Reads the next output frames.
+	 * @param outLeft
+	 * @param outRight
+	 * @param offset
+	 * @param frames
+	 * @return Number of frames read, less than frames only at the end.
+	 * @throws IOException 
+	 */
+	public int read(float[] outLeft, float[] outRight, int offset, int frames) throws IOException {
+		discard(passThrough ? position : (long) Math.ceil(sourcePosition(position) - halfWidth));
+		
+		int count = 0;
+		while (count < frames) {
+			double p = sourcePosition(position);
+			long last = passThrough ? position : (long) Math.floor(p + halfWidth);
+			fill(last + 1);
+			
+			long length = getLengthFrames();
+			if (length >= 0 && position >= length) {
+				break;
+			}
+			
+			if (passThrough) {
+				outLeft[offset + count] = sample(left, position);
+				outRight[offset + count] = sample(right, position);
+			} else {
+				float sumLeft = 0;
+				float sumRight = 0;
+				for (long n = (long) Math.ceil(p - halfWidth); n <= last; n++) {
+					float w = weight(Math.abs(p - n) * cutoff);
+					sumLeft += sample(left, n) * w;
+					sumRight += sample(right, n) * w;
+				}
+				outLeft[offset + count] = (float) (sumLeft * cutoff);
+				outRight[offset + count] = (float) (sumRight * cutoff);
+			}
+			
+			count++;
+			position++;
+		}
+		return count;
+	}
+	
+	private double sourcePosition(long outputFrame) {
+		return outputFrame * (double) sourceRate / outputRate;
+	}
+	
+	//x is the distance in zero crossings.
+	private static float weight(double x) {
+		double idx = x * TABLE_STEPS;
+		int i = (int) idx;
+		if (i >= ZERO_CROSSINGS * TABLE_STEPS) {
+			return 0;
+		}
+		return (float) (KERNEL[i] + (KERNEL[i + 1] - KERNEL[i]) * (idx - i));
+	}
+	
+	private float sample(float[] channel, long frame) {
+		long idx = frame - bufferStart;
+		if (idx < 0 || idx >= bufferLength) {
+			return 0; //before the start or after the end of the source
+		}
+		return channel[(int) idx];
+	}
+	
+	//reads from the source until the buffer reaches untilFrame or the source ends.
+	private void fill(long untilFrame) throws IOException {
+		while (sourceEnd == -1 && bufferStart + bufferLength < untilFrame) {
+			int read = source.read(readLeft, readRight, 0, READ_FRAMES);
+			if (read < 0) {
+				sourceEnd = bufferStart + bufferLength;
+				return;
+			}
+			
+			if (bufferLength + read > left.length) {
+				int size = Math.max(bufferLength + read, left.length * 2);
+				left = Arrays.copyOf(left, size);
+				right = Arrays.copyOf(right, size);
+			}
+			for (int i = 0; i < read; i++) {
+				left[bufferLength + i] = readLeft[i];
+				right[bufferLength + i] = readRight[i];
+			}
+			bufferLength += read;
+		}
+	}
+	
+	//drops the buffered frames before the given frame, they aren't needed anymore.
+	private void discard(long frame) {
+		int count = (int) Math.min(Math.max(0, frame - bufferStart), bufferLength);
+		if (count == 0) {
+			return;
+		}
+		System.arraycopy(left, count, left, 0, bufferLength - count);
+		System.arraycopy(right, count, right, 0, bufferLength - count);
+		bufferStart += count;
+		bufferLength -= count;
+	}
+}
@@ -0,0 +1,415 @@
+package audiofilereader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Block based silence/activity detector for 16bit interleaved audio.
+ * Samples are fed in as they are decoded, so the whole audio never has to be in memory.
+ * Only the found activity ranges are kept.
+ * 
+ * Every block of blockFrames frames is measured by its peak value over all channels.
+ * Activity starts when a block reaches openThreshold, and it ends only after the blocks
+ * have stayed under closeThreshold for at least minSilenceFrames (hysteresis).
+ * Activity ranges shorter than minActivityFrames are dropped.
+ * 
+ * split() also gives out the audio of each activity range while scanning. Frames are only held back
+ * until it's known whether they belong to a range, so memory use depends on the block, minimum silence
+ * and minimum activity lengths, not on the length of the stream.
+ */
+public class SilenceDetector {
+	/**
+	 * Receives the audio of the activity ranges from split(), in order.
+	 * Data is 16bit little endian interleaved bytes. The array is reused, copy it if you need to keep it.
+	 */
+	public interface SegmentConsumer {
+		void segmentStart(long startFrame) throws IOException;
+		void segmentData(byte[] bytes, int offset, int length) throws IOException;
+		void segmentEnd(FrameRange range) throws IOException;
+	}
+	
+	private int channels;
+	private int sampleRate;
+	
+	private int openThreshold = 500; //about -36 dBFS
+	private int closeThreshold = 250; //about -42 dBFS
+	private long blockMillis = 10;
+	private long minSilenceMillis = 500;
+	private long minActivityMillis = 0;
+	
+	private int blockFrames;
+	private long minSilenceFrames;
+	private long minActivityFrames;
+	
+	private final List<FrameRange> ranges = new ArrayList<>();
+	
+	private long frame = 0; //frames processed so far
+	private int channelIdx = 0;
+	private int blockPeak = 0;
+	private int framesInBlock = 0;
+	
+	private boolean active = false;
+	private long activeStart;
+	private long silenceStart; //start of the current quiet stretch while active, -1 if not quiet
+	
+	private int pendingByte = -1; //low byte of a sample split between two byte blocks
+	
+	//only used by split()
+	private SegmentConsumer segmentConsumer;
+	private boolean segmentOpen = false;
+	private byte[] held = new byte[0]; //frames from heldStart to frame that are not yet given out or dropped
+	private int heldLength = 0;
+	private long heldStart = 0;
+	
+	/**
+	 * Creates a detector with 10ms blocks, 500ms minimum silence and no minimum activity length.
+	 * Format is given later with begin(), usually by the decoder once it knows it.
+	 */
+	public SilenceDetector() {}
+	
+	public SilenceDetector(int sampleRate, int channels) {
+		begin(sampleRate, channels);
+	}
+	
+	public static SilenceDetector create(MusicData musicData) {
+		return new SilenceDetector(musicData.sampleRate, musicData.getChannels());
+	}
+	
+	public static int decibelsToAmplitude(double dBFS) {
+		return (int) Math.round(Math.pow(10, dBFS / 20) * Short.MAX_VALUE);
+	}
+	
+	/**
+	 * Thresholds are peak values in 16bit range (0-32767).
+	 * closeThreshold must not be higher than openThreshold.
+	 * @param openThreshold Level that starts activity.
+	 * @param closeThreshold Level that activity has to fall under before it can end.
+	 * @return 
+	 */
+	public SilenceDetector setThresholds(int openThreshold, int closeThreshold) {
+		if (closeThreshold > openThreshold) {
+			throw new IllegalArgumentException("close threshold " + closeThreshold + " is higher than open threshold " + openThreshold);
+		}
+		this.openThreshold = openThreshold;
+		this.closeThreshold = closeThreshold;
+		return this;
+	}
+	
+	public SilenceDetector setThresholdsDecibels(double openDBFS, double closeDBFS) {
+		return setThresholds(decibelsToAmplitude(openDBFS), decibelsToAmplitude(closeDBFS));
+	}
+	
+	public SilenceDetector setBlockMillis(long millis) {
+		blockMillis = millis;
+		updateFrameValues();
+		return this;
+	}
+	
+	public SilenceDetector setMinSilenceMillis(long millis) {
+		minSilenceMillis = millis;
+		updateFrameValues();
+		return this;
+	}
+	
+	public SilenceDetector setMinActivityMillis(long millis) {
+		minActivityMillis = millis;
+		updateFrameValues();
+		return this;
+	}
+	
+	//durations are kept in millis so they can be set before the sample rate is known.
+	private void updateFrameValues() {
+		if (sampleRate <= 0) {
+			return;
+		}
+		if (framesInBlock == 0) {
+			updateBlockFrames();
+		}
+		minSilenceFrames = sampleRate * minSilenceMillis / 1000;
+		minActivityFrames = sampleRate * minActivityMillis / 1000;
+	}
+	
+	//a new block length is taken into use only at a block boundary, the current block ends with the old length.
+	private void updateBlockFrames() {
+		blockFrames = (int) Math.max(1, sampleRate * blockMillis / 1000);
+	}
+	
+	/**
+	 * Sets the format of the coming samples and clears the previous results.
+	 * Has to be called before processing if the detector was created without a format.
+	 * @param sampleRate
+	 * @param channels 
+	 */
+	public void begin(int sampleRate, int channels) {
+		if (channels < 1) {
+			throw new IllegalArgumentException("channels must be at least 1, was " + channels);
+		}
+		this.sampleRate = sampleRate;
+		this.channels = channels;
+		reset();
+		updateFrameValues();
+	}
+	
+	public int getChannels() {
+		return channels;
+	}
+	
+	public int getSampleRate() {
+		return sampleRate;
+	}
+	
+	/**
+	 * Feeds interleaved samples. Can be called with any sized pieces, frames can be split between calls.
+	 * @param samples
+	 * @param offset
+	 * @param length 
+	 */
+	public void process(short[] samples, int offset, int length) {
+		for (int i = offset; i < offset + length; i++) {
+			processSample(samples[i]);
+		}
+	}
+	
+	/**
+	 * Feeds 16bit little endian interleaved bytes, like dataBytes or ffmpeg s16le output.
+	 * Samples can be split between calls.
+	 * @param bytes
+	 * @param offset
+	 * @param length 
+	 */
+	public void process(byte[] bytes, int offset, int length) {
+		int i = offset;
+		int end = offset + length;
+		
+		if (pendingByte != -1 && i < end) {
+			processSample((short) (pendingByte | bytes[i] << 8));
+			pendingByte = -1;
+			i++;
+		}
+		
+		for (; i + 1 < end; i += 2) {
+			processSample((short) ((bytes[i] & 0xff) | bytes[i + 1] << 8));
+		}
+		
+		if (i < end) {
+			pendingByte = bytes[i] & 0xff;
+		}
+	}
+	
+	/**
+	 * Reads the stream to the end in small blocks and returns the activity ranges.
+	 * Stream is expected to be 16bit little endian interleaved data without a header.
+	 * Memory use does not depend on the length of the stream.
+	 * Clears the previous results, frames are counted from the start of this stream.
+	 * @param in
+	 * @return
+	 * @throws IOException 
+	 */
+	public List<FrameRange> scan(InputStream in) throws IOException {
+		reset();
+		byte[] buffer = new byte[8192];
+		int read;
+		while ((read = in.read(buffer)) != -1) {
+			process(buffer, 0, read);
+		}
+		return finish();
+	}
+	
+	/**
+	 * Scans the stream like scan(), and gives the audio of each activity range to the consumer.
+	 * A recording of any length can be split in one pass, only the undecided frames are kept in memory.
+	 * @param in 16bit little endian interleaved data without a header.
+	 * @param consumer
+	 * @return Activity ranges, same as the segments given to the consumer.
+	 * @throws IOException 
+	 */
+	public List<FrameRange> split(InputStream in, SegmentConsumer consumer) throws IOException {
+		reset();
+		segmentConsumer = consumer;
+		try {
+			byte[] buffer = new byte[8192];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				process(buffer, 0, read);
+				flushSegment();
+			}
+			finish();
+			flushSegment();
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		} finally {
+			segmentConsumer = null;
+		}
+		return getRanges();
+	}
+	
+	private void processSample(short sample) {
+		if (channels == 0) {
+			throw new IllegalStateException("begin() has to be called before processing");
+		}
+		if (segmentConsumer != null) {
+			hold(sample);
+		}
+		int abs = Math.abs((int) sample);
+		if (abs > blockPeak) {
+			blockPeak = abs;
+		}
+		
+		channelIdx++;
+		if (channelIdx < channels) {
+			return;
+		}
+		channelIdx = 0;
+		frame++;
+		framesInBlock++;
+		
+		if (framesInBlock == blockFrames) {
+			endBlock();
+		}
+	}
+	
+	private void endBlock() {
+		long blockStart = frame - framesInBlock;
+		
+		if (!active) {
+			if (blockPeak >= openThreshold) {
+				active = true;
+				activeStart = blockStart;
+				silenceStart = -1;
+			} else if (segmentConsumer != null) {
+				dropHeld(frame);
+			}
+		} else if (blockPeak < closeThreshold) {
+			if (silenceStart == -1) {
+				silenceStart = blockStart;
+			}
+			if (frame - silenceStart >= minSilenceFrames) {
+				closeRange(silenceStart);
+			}
+		} else {
+			silenceStart = -1;
+		}
+		
+		blockPeak = 0;
+		framesInBlock = 0;
+		updateBlockFrames();
+	}
+	
+	private void closeRange(long end) {
+		if (end - activeStart >= minActivityFrames) {
+			FrameRange range = new FrameRange(activeStart, end);
+			ranges.add(range);
+			if (segmentConsumer != null) {
+				giveHeld(end);
+				callConsumer(() -> segmentConsumer.segmentEnd(range));
+			}
+		}
+		if (segmentConsumer != null) {
+			segmentOpen = false;
+			dropHeld(frame);
+		}
+		active = false;
+		silenceStart = -1;
+	}
+	
+	/**
+	 * Gives out held frames that are known to be part of a range: the range is already
+	 * long enough to be kept, and the frames are before the current quiet stretch.
+	 */
+	private void flushSegment() {
+		if (segmentConsumer == null || !active) {
+			return;
+		}
+		long end = silenceStart != -1 ? silenceStart : frame - framesInBlock;
+		if (end - activeStart >= minActivityFrames) {
+			giveHeld(end);
+		}
+	}
+	
+	private void hold(short sample) {
+		if (heldLength + 2 > held.length) {
+			held = Arrays.copyOf(held, Math.max(8192, held.length * 2));
+		}
+		held[heldLength++] = (byte) (sample & 0xff);
+		held[heldLength++] = (byte) (sample >> 8 & 0xff);
+	}
+	
+	private void giveHeld(long untilFrame) {
+		int length = (int) (untilFrame - heldStart) * channels * 2;
+		if (length <= 0) {
+			return;
+		}
+		if (!segmentOpen) {
+			segmentOpen = true;
+			callConsumer(() -> segmentConsumer.segmentStart(activeStart));
+		}
+		callConsumer(() -> segmentConsumer.segmentData(held, 0, length));
+		dropHeld(untilFrame);
+	}
+	
+	private void dropHeld(long untilFrame) {
+		int length = (int) (untilFrame - heldStart) * channels * 2;
+		if (length <= 0) {
+			return;
+		}
+		System.arraycopy(held, length, held, 0, heldLength - length);
+		heldLength -= length;
+		heldStart = untilFrame;
+	}
+	
+	private interface ConsumerCall {
+		void call() throws IOException;
+	}
+	
+	//processing methods don't throw IOException, so it's passed through split() unchecked.
+	private void callConsumer(ConsumerCall call) {
+		try {
+			call.call();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+	
+	/**
+	 * Handles the last partial block and closes the open activity range.
+	 * @return Activity ranges in order.
+	 */
+	public List<FrameRange> finish() {
+		if (framesInBlock > 0) {
+			endBlock();
+		}
+		if (active) {
+			closeRange(silenceStart != -1 ? silenceStart : frame);
+		}
+		return getRanges();
+	}
+	
+	public List<FrameRange> getRanges() {
+		return new ArrayList<>(ranges);
+	}
+	
+	public long getFramesProcessed() {
+		return frame;
+	}
+	
+	public void reset() {
+		ranges.clear();
+		frame = 0;
+		channelIdx = 0;
+		blockPeak = 0;
+		framesInBlock = 0;
+		active = false;
+		silenceStart = -1;
+		pendingByte = -1;
+		segmentOpen = false;
+		heldLength = 0;
+		heldStart = 0;
+		if (sampleRate > 0) {
+			updateBlockFrames();
+		}
+	}
+}
@@ -0,0 +1,139 @@
+package audiofilereader;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import processes.Execute;
+import processes.StreamGobbler;
+import processes.StreamGobblerText;
+
+/**
+ * AudioSource that decodes 16bit little endian interleaved audio from a stream while it's read.
+ * Only one read worth of bytes is kept in memory. The stream is closed when the end is reached.
+ */
+public class StreamAudioSource implements AudioSource, Closeable {
+	private final InputStream in;
+	private final int sampleRate;
+	private final int channels;
+	private final long totalFrames;
+	private Process process;
+	
+	private byte[] buffer = new byte[0];
+	private boolean ended = false;
+	
+	/**
+	 * @param in 16bit little endian interleaved data without a header.
+	 * @param sampleRate
+	 * @param channels 1 or 2.
+	 * @param totalFrames -1 if not known.
+	 */
+	public StreamAudioSource(InputStream in, int sampleRate, int channels, long totalFrames) {
+		if (channels != 1 && channels != 2) {
+			throw new IllegalArgumentException("stream source supports 1 or 2 channels, was " + channels);
+		}
+		this.in = in;
+		this.sampleRate = sampleRate;
+		this.channels = channels;
+		this.totalFrames = totalFrames;
+	}
+	
+	public static StreamAudioSource create(File file) throws IOException, UnsupportedAudioFileException {
+		return create(AudioSystem.getAudioInputStream(file));
+	}
+	
+	/**
+	 * Converts the stream to 16bit and max 2 channels, same as the MusicData constructor does.
+	 * @param ais
+	 * @return 
+	 */
+	public static StreamAudioSource create(AudioInputStream ais) {
+		AudioFormat format = ais.getFormat();
+		
+		AudioFormat toAudioFormat = new AudioFormat(format.getSampleRate(), 16, format.getChannels() > 2 ? 1 : format.getChannels(), true, false);
+		if (!AudioSystem.isConversionSupported(toAudioFormat, format)) {
+			throw new IllegalArgumentException("system cannot convert from " + format + " to " + toAudioFormat);
+		}
+		ais = AudioSystem.getAudioInputStream(toAudioFormat, ais);
+		format = ais.getFormat();
+		
+		long frames = ais.getFrameLength() == AudioSystem.NOT_SPECIFIED ? -1 : ais.getFrameLength();
+		return new StreamAudioSource(ais, (int) format.getSampleRate(), format.getChannels(), frames);
+	}
+	
+	/**
+	 * Decodes the file with ffmpeg through a pipe, so it can read anything ffmpeg can.
+	 * Length is not known beforehand.
+	 * @param file
+	 * @param sampleRate Sample rate ffmpeg converts to.
+	 * @param channels 1 or 2.
+	 * @return
+	 * @throws IOException 
+	 */
+	public static StreamAudioSource createFFmpeg(File file, int sampleRate, int channels) throws IOException {
+		if (!Execute.programExists("ffmpeg")) {
+			throw new IOException("No ffmpeg installed!");
+		}
+		
+		String command = "ffmpeg -i \"" + file.getAbsolutePath() + "\" -c:a pcm_s16le -ac " + channels + " -ar " + sampleRate + " -f s16le pipe:1";
+		Process process = Execute.executeCommandGetProcess(command);
+		new StreamGobblerText(process.getErrorStream(), StreamGobbler.Type.ERROR, false, text -> {}).start(); //ffmpeg blocks if its output isn't read.
+		
+		StreamAudioSource source = new StreamAudioSource(process.getInputStream(), sampleRate, channels, -1);
+		source.process = process;
+		return source;
+	}
+	
+	@Override
+	public int getSampleRate() {
+		return sampleRate;
+	}
+	
+	public int getChannels() {
+		return channels;
+	}
+	
+	@Override
+	public long getTotalFrames() {
+		return totalFrames;
+	}
+	
+	@Override
+	public int read(short[] left, short[] right, int offset, int frames) throws IOException {
+		if (ended) {
+			return -1;
+		}
+		
+		int bytesPerFrame = channels * 2;
+		if (buffer.length < frames * bytesPerFrame) {
+			buffer = new byte[frames * bytesPerFrame];
+		}
+		
+		int count = in.readNBytes(buffer, 0, frames * bytesPerFrame) / bytesPerFrame;
+		if (count == 0) {
+			close();
+			return -1;
+		}
+		
+		for (int i = 0; i < count; i++) {
+			int idx = i * bytesPerFrame;
+			short l = (short) ((buffer[idx] & 0xff) | buffer[idx + 1] << 8);
+			left[offset + i] = l;
+			right[offset + i] = channels == 1 ? l : (short) ((buffer[idx + 2] & 0xff) | buffer[idx + 3] << 8);
+		}
+		return count;
+	}
+	
+	@Override
+	public void close() throws IOException {
+		ended = true;
+		in.close();
+		if (process != null) {
+			process.destroy();
+		}
+	}
+}